@@ -0,0 +1,115 @@
+package churchich.physicssim;
+
+/**
+ * Physics step for the off-heap bodies in a BodyStore, independent of Swing so it
+ * can run headless. Bodies fall under gravity, lose speed to friction, bounce off
+ * the walls of a world of the given size and collide through a neighbour list.
+ */
+public class BodyPhysics {
+
+    private static final double BOUNCE = 0.8;           // speed kept when bouncing off a wall
+    private static final double GROUND_FRICTION = 0.9;  // horizontal speed kept when touching the ground
+
+    private final double gravity;
+    private final double friction;
+    private final NeighbourList neighbours;
+    private final ConservationDiagnostics diagnostics;
+
+    /**
+     * @param diagnostics receives the momentum and energy changes of every step (may be null)
+     */
+    public BodyPhysics(double gravity, double friction, NeighbourList neighbours,
+                       ConservationDiagnostics diagnostics) {
+        this.gravity = gravity;
+        this.friction = friction;
+        this.neighbours = neighbours;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Advance all bodies by one step inside a world of width x height; each record is read once and written once
+     */
+    public void step(BodyStore bodies, double width, double height) {
+        // Diagnostics deltas for the whole step
+        double dMomentumX = 0, dMomentumY = 0, dKinetic = 0, dPotential = 0;
+        double restitution = 0, damping = 0, correction = 0;
+
+        for (int i = 0; i < bodies.size(); i++) {
+            if (bodies.isStatic(i)) {
+                continue;
+            }
+            double x = bodies.getX(i);
+            double y0 = bodies.getY(i);
+            double vx0 = bodies.getVx(i);
+            double vy0 = bodies.getVy(i);
+            double bodyWidth = bodies.getWidth(i);
+            double bodyHeight = bodies.getHeight(i);
+
+            // Apply gravity and friction, then update position
+            double kickedVy = vy0 + gravity;
+            double vx = vx0 * friction;
+            double vy = kickedVy * friction;
+            x += vx;
+            double y = y0 + vy;
+            double movedY = y;
+
+            // Per unit mass: kinetic energy lost at the walls and to ground friction
+            double bounced = 0, rubbed = 0;
+
+            // Left/Right walls
+            if (x < 0) {
+                x = 0;
+                bounced += vx * vx;
+                vx = -vx * BOUNCE;
+            } else if (x + bodyWidth > width) {
+                x = width - bodyWidth;
+                bounced += vx * vx;
+                vx = -vx * BOUNCE;
+            }
+
+            // Top/Bottom walls
+            double wallVy = vy;
+            if (y < 0) {
+                y = 0;
+                bounced += vy * vy;
+                vy = -vy * BOUNCE;
+            } else if (y + bodyHeight > height) {
+                y = height - bodyHeight;
+                bounced += vy * vy;
+                vy = -vy * BOUNCE;
+
+                // Add friction when on ground
+                rubbed = vx * vx * (1 - GROUND_FRICTION * GROUND_FRICTION);
+                vx *= GROUND_FRICTION;
+            }
+
+            bodies.setPosition(i, x, y);
+            bodies.setVelocity(i, vx, vy);
+
+            if (diagnostics != null) {
+                double mass = 1.0 / bodies.getInverseMass(i);
+
+                dMomentumX += mass * (vx - vx0);
+                dMomentumY += mass * (vy - vy0);
+                dKinetic += mass * 0.5 * (vx * vx + vy * vy - vx0 * vx0 - vy0 * vy0);
+                dPotential -= mass * gravity * (y - y0);
+
+                restitution += mass * 0.5 * (1 - BOUNCE * BOUNCE) * bounced;
+                damping += mass * 0.5 * ((1 - friction * friction) * (vx0 * vx0 + kickedVy * kickedVy) + rubbed);
+
+                // Damping the kicked velocity before moving, clamping into the world, and the
+                // g/2 * momentumY part of the bounce (see ConservationDiagnostics)
+                correction += mass * gravity * (0.5 * (1 - friction) * kickedVy
+                        - (y - movedY) + 0.5 * (vy - wallVy));
+            }
+        }
+
+        if (diagnostics != null) {
+            diagnostics.accumulate(dMomentumX, dMomentumY, dKinetic, dPotential, restitution, damping, correction);
+        }
+        HandleObjectCollisions.handleAllCollisions(bodies, neighbours, diagnostics);
+        if (diagnostics != null) {
+            diagnostics.endStep(bodies);
+        }
+    }
+}
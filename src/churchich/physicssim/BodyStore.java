@@ -0,0 +1,260 @@
+package churchich.physicssim;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static java.lang.foreign.MemoryLayout.PathElement.groupElement;
+
+/**
+ * Off-heap storage for large numbers of bodies.
+ * Every body is a fixed size record in one MemorySegment, so no PhysicsObject
+ * or Velocity is allocated per body and the garbage collector never sees them.
+ */
+public final class BodyStore implements AutoCloseable {
+
+    // Shapes
+    public static final int SHAPE_CIRCLE = 0;
+    public static final int SHAPE_RECTANGLE = 1;
+
+    // Flags
+    public static final int FLAG_PINNED = 1; // pinned bodies are not moved by the physics step or collisions
+
+    // Scene files are little endian so they can be shared between machines
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    // Record layout of a single body (64 bytes); inverse mass 0 means static
+    public static final StructLayout BODY_LAYOUT = MemoryLayout.structLayout(
+            DOUBLE.withName("x"),
+            DOUBLE.withName("y"),
+            DOUBLE.withName("vx"),
+            DOUBLE.withName("vy"),
+            DOUBLE.withName("inverseMass"),
+            DOUBLE.withName("width"),
+            DOUBLE.withName("height"),
+            INT.withName("shape"),
+            INT.withName("flags")
+    );
+
+    // Scene file header, followed by the body records (64 bytes so records stay aligned)
+    public static final StructLayout HEADER_LAYOUT = MemoryLayout.structLayout(
+            INT.withName("magic"),
+            INT.withName("version"),
+            LONG.withName("count"),
+            MemoryLayout.paddingLayout(48)
+    );
+
+    public static final int MAGIC = 0x59444F42;  // "BODY" in little endian
+    public static final int VERSION = 1;         // bump whenever BODY_LAYOUT changes
+
+    public static final long RECORD_SIZE = BODY_LAYOUT.byteSize();
+
+    private static final long X = BODY_LAYOUT.byteOffset(groupElement("x"));
+    private static final long Y = BODY_LAYOUT.byteOffset(groupElement("y"));
+    private static final long VX = BODY_LAYOUT.byteOffset(groupElement("vx"));
+    private static final long VY = BODY_LAYOUT.byteOffset(groupElement("vy"));
+    private static final long INVERSE_MASS = BODY_LAYOUT.byteOffset(groupElement("inverseMass"));
+    private static final long WIDTH = BODY_LAYOUT.byteOffset(groupElement("width"));
+    private static final long HEIGHT = BODY_LAYOUT.byteOffset(groupElement("height"));
+    private static final long SHAPE = BODY_LAYOUT.byteOffset(groupElement("shape"));
+    private static final long FLAGS = BODY_LAYOUT.byteOffset(groupElement("flags"));
+
+    private static final long HEADER_SIZE = HEADER_LAYOUT.byteSize();
+    private static final long HEADER_MAGIC = HEADER_LAYOUT.byteOffset(groupElement("magic"));
+    private static final long HEADER_VERSION = HEADER_LAYOUT.byteOffset(groupElement("version"));
+    private static final long HEADER_COUNT = HEADER_LAYOUT.byteOffset(groupElement("count"));
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final int capacity;
+    private int count;
+
+    private BodyStore(Arena arena, MemorySegment segment, int count) {
+        this.arena = arena;
+        this.segment = segment;
+        this.capacity = (int) (segment.byteSize() / RECORD_SIZE);
+        this.count = count;
+    }
+
+    /**
+     * Allocate an empty store with room for the given number of bodies
+     */
+    public static BodyStore allocate(int capacity) {
+        // Shared so the physics thread and the Swing thread can both read it
+        Arena arena = Arena.ofShared();
+        return new BodyStore(arena, arena.allocate(BODY_LAYOUT, capacity), 0);
+    }
+
+    /**
+     * Map a scene file of body records straight into memory.
+     * Files without the expected header, layout version or size are rejected with an IOException.
+     * The mapping is private (copy-on-write), so the simulation never writes back to the file.
+     * A private mapping needs a channel open for writing, so read-only scene files
+     * (permissions, read-only mounts) are copied into an allocated store instead.
+     */
+    public static BodyStore map(Path sceneFile) throws IOException {
+        if (!Files.isWritable(sceneFile)) {
+            return load(sceneFile);
+        }
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(sceneFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            MemorySegment file = channel.map(FileChannel.MapMode.PRIVATE, 0, size, arena);
+            int records = recordCount(sceneFile, file);
+            return new BodyStore(arena, file.asSlice(HEADER_SIZE), records);
+        } catch (AccessDeniedException e) {
+            arena.close();
+            return load(sceneFile);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    // Copy a scene file into a newly allocated store, needing only read access
+    static BodyStore load(Path sceneFile) throws IOException {
+        try (Arena fileArena = Arena.ofConfined();
+             FileChannel channel = FileChannel.open(sceneFile, StandardOpenOption.READ)) {
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), fileArena);
+            BodyStore bodies = allocate(recordCount(sceneFile, file));
+            MemorySegment.copy(file, HEADER_SIZE, bodies.segment, 0, bodies.segment.byteSize());
+            bodies.count = bodies.capacity;
+            return bodies;
+        }
+    }
+
+    // Check the header of a scene file and return the number of body records after it
+    private static int recordCount(Path sceneFile, MemorySegment file) throws IOException {
+        if (file.byteSize() < HEADER_SIZE || file.get(INT, HEADER_MAGIC) != MAGIC) {
+            throw new IOException("Scene file " + sceneFile + " is not a body scene file");
+        }
+        int version = file.get(INT, HEADER_VERSION);
+        if (version != VERSION) {
+            throw new IOException("Scene file " + sceneFile + " has layout version " + version
+                    + ", expected " + VERSION);
+        }
+        long count = file.get(LONG, HEADER_COUNT);
+        if (count < 0 || count > Integer.MAX_VALUE || file.byteSize() != HEADER_SIZE + count * RECORD_SIZE) {
+            throw new IOException("Scene file " + sceneFile + " does not hold the " + count + " bodies in its header");
+        }
+        return (int) count;
+    }
+
+    /**
+     * Write all bodies to a scene file that can later be loaded with map()
+     */
+    public void save(Path sceneFile) throws IOException {
+        long size = count * RECORD_SIZE;
+        Files.deleteIfExists(sceneFile);
+        try (Arena fileArena = Arena.ofConfined();
+             FileChannel channel = FileChannel.open(sceneFile, StandardOpenOption.CREATE_NEW,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + size, fileArena);
+            file.set(INT, HEADER_MAGIC, MAGIC);
+            file.set(INT, HEADER_VERSION, VERSION);
+            file.set(LONG, HEADER_COUNT, count);
+            MemorySegment.copy(segment, 0, file, HEADER_SIZE, size);
+            file.force();
+        }
+    }
+
+    public int addCircle(double x, double y, int diameter) {
+        return add(SHAPE_CIRCLE, x, y, diameter, diameter, Mass.calculateMassCircle(diameter));
+    }
+
+    public int addRectangle(double x, double y, int width, int height) {
+        return add(SHAPE_RECTANGLE, x, y, width, height, Mass.calculateMassRectangle(width, height));
+    }
+
+    private int add(int shape, double x, double y, double width, double height, double mass) {
+        // A size of zero or less would give a zero or negative mass
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Body size must be positive, got " + width + " x " + height);
+        }
+        if (count == capacity) {
+            throw new IllegalStateException("BodyStore is full (" + capacity + " bodies)");
+        }
+        int i = count++;
+        long base = i * RECORD_SIZE;
+        segment.set(DOUBLE, base + X, x);
+        segment.set(DOUBLE, base + Y, y);
+        segment.set(DOUBLE, base + VX, 0.0);
+        segment.set(DOUBLE, base + VY, 0.0);
+        segment.set(DOUBLE, base + INVERSE_MASS, 1.0 / mass);
+        segment.set(DOUBLE, base + WIDTH, width);
+        segment.set(DOUBLE, base + HEIGHT, height);
+        segment.set(INT, base + SHAPE, shape);
+        segment.set(INT, base + FLAGS, 0);
+        return i;
+    }
+
+    public int size() { return count; }
+    public int capacity() { return capacity; }
+
+    public double getX(int i) { return segment.get(DOUBLE, i * RECORD_SIZE + X); }
+    public double getY(int i) { return segment.get(DOUBLE, i * RECORD_SIZE + Y); }
+    public double getVx(int i) { return segment.get(DOUBLE, i * RECORD_SIZE + VX); }
+    public double getVy(int i) { return segment.get(DOUBLE, i * RECORD_SIZE + VY); }
+    public double getInverseMass(int i) { return segment.get(DOUBLE, i * RECORD_SIZE + INVERSE_MASS); }
+    public double getWidth(int i) { return segment.get(DOUBLE, i * RECORD_SIZE + WIDTH); }
+    public double getHeight(int i) { return segment.get(DOUBLE, i * RECORD_SIZE + HEIGHT); }
+    public int getShape(int i) { return segment.get(INT, i * RECORD_SIZE + SHAPE); }
+    public int getFlags(int i) { return segment.get(INT, i * RECORD_SIZE + FLAGS); }
+
+    // Static bodies (pinned, or infinite mass) are never moved by the physics step or collisions
+    public boolean isStatic(int i) {
+        return (getFlags(i) & FLAG_PINNED) != 0 || getInverseMass(i) == 0;
+    }
+
+    public double getCenterX(int i) { return getX(i) + getWidth(i) / 2.0; }
+    public double getCenterY(int i) { return getY(i) + getHeight(i) / 2.0; }
+
+    public void setPosition(int i, double x, double y) {
+        long base = i * RECORD_SIZE;
+        segment.set(DOUBLE, base + X, x);
+        segment.set(DOUBLE, base + Y, y);
+    }
+
+    public void setVx(int i, double vx) { segment.set(DOUBLE, i * RECORD_SIZE + VX, vx); }
+    public void setVy(int i, double vy) { segment.set(DOUBLE, i * RECORD_SIZE + VY, vy); }
+    public void setFlags(int i, int flags) { segment.set(INT, i * RECORD_SIZE + FLAGS, flags); }
+
+    // Inverse mass 0 makes a body static (infinitely heavy)
+    public void setInverseMass(int i, double inverseMass) {
+        if (!(inverseMass >= 0) || Double.isInfinite(inverseMass)) {
+            throw new IllegalArgumentException("Inverse mass must be finite and >= 0, got " + inverseMass);
+        }
+        segment.set(DOUBLE, i * RECORD_SIZE + INVERSE_MASS, inverseMass);
+    }
+
+    public void setVelocity(int i, double vx, double vy) {
+        long base = i * RECORD_SIZE;
+        segment.set(DOUBLE, base + VX, vx);
+        segment.set(DOUBLE, base + VY, vy);
+    }
+
+    public void addVelocity(int i, double dvx, double dvy) {
+        long base = i * RECORD_SIZE;
+        segment.set(DOUBLE, base + VX, segment.get(DOUBLE, base + VX) + dvx);
+        segment.set(DOUBLE, base + VY, segment.get(DOUBLE, base + VY) + dvy);
+    }
+
+    /**
+     * Release the off-heap memory (or the file mapping)
+     */
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
@@ -0,0 +1,238 @@
+package churchich.physicssim;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+/**
+ * Running totals of linear momentum, kinetic energy, potential energy and
+ * energy lost to restitution and damping for the bodies in a BodyStore.
+ * Position corrections (wall clamps, overlap separation) move bodies without
+ * any force doing work, so the potential energy they add is tracked separately.
+ * The totals are kept up to date from deltas reported during integration and
+ * collision resolution, and every few steps they are checked against a full
+ * parallel reduction over all bodies. Static bodies (see BodyStore.isStatic) are left out.
+ *
+ * Energy is balanced against what the physics step actually conserves:
+ * kick-then-move with gravity keeps kinetic + potential + g/2 * momentumY
+ * exactly constant. Restitution and damping are the kinetic energy taken out
+ * by bounces and by air and ground friction, so they never go negative; every
+ * other change of that energy (wall clamps, overlap separation, the g/2 * momentumY
+ * part of bounces and friction) is booked as correction. With every change booked,
+ * energyDrift stays at zero apart from rounding. It only moves when the
+ * reconciliation finds changes that were never reported.
+ */
+public class ConservationDiagnostics {
+
+    /**
+     * Receives the totals at the end of every step (recorders, metrics, ...)
+     */
+    public interface Listener {
+        void onTotals(Totals totals);
+    }
+
+    /**
+     * Immutable view of the totals at the end of a step
+     */
+    public static final class Totals {
+        public final long step;
+        public final double momentumX;
+        public final double momentumY;
+        public final double kineticEnergy;
+        public final double potentialEnergy;
+        public final double lostToRestitution;
+        public final double lostToDamping;
+        public final double addedByCorrection;
+        public final double energyDrift;     // conserved energy plus losses minus corrections, minus the value at reset
+        public final double reconcileError;  // largest difference found at the last reconciliation
+
+        Totals(long step, double momentumX, double momentumY,
+               double kineticEnergy, double potentialEnergy,
+               double lostToRestitution, double lostToDamping, double addedByCorrection,
+               double energyDrift, double reconcileError) {
+            this.step = step;
+            this.momentumX = momentumX;
+            this.momentumY = momentumY;
+            this.kineticEnergy = kineticEnergy;
+            this.potentialEnergy = potentialEnergy;
+            this.lostToRestitution = lostToRestitution;
+            this.lostToDamping = lostToDamping;
+            this.addedByCorrection = addedByCorrection;
+            this.energyDrift = energyDrift;
+            this.reconcileError = reconcileError;
+        }
+
+        public double getTotalEnergy() {
+            return kineticEnergy + potentialEnergy;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Totals(step=%d, momentum=(%.2f, %.2f), kinetic=%.2f, potential=%.2f, "
+                            + "restitution=%.2f, damping=%.2f, correction=%.2f, drift=%.4f, reconcileError=%.4f)",
+                    step, momentumX, momentumY, kineticEnergy, potentialEnergy,
+                    lostToRestitution, lostToDamping, addedByCorrection, energyDrift, reconcileError);
+        }
+    }
+
+    private final double gravity;
+    private final int reconcileInterval;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Running totals (physics thread only)
+    private double momentumX;
+    private double momentumY;
+    private double kineticEnergy;
+    private double potentialEnergy;
+    private double lostToRestitution;
+    private double lostToDamping;
+    private double addedByCorrection;
+    private double initialEnergy;
+    private double reconcileError;
+    private long step;
+
+    // Last published totals, safe to read from any thread
+    private volatile Totals totals;
+
+    /**
+     * @param gravity           gravity used by the physics step, for potential energy
+     * @param reconcileInterval number of steps between full reductions
+     */
+    public ConservationDiagnostics(double gravity, int reconcileInterval) {
+        this.gravity = gravity;
+        this.reconcileInterval = reconcileInterval;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    private static double kineticEnergy(double mass, double vx, double vy) {
+        return 0.5 * mass * (vx * vx + vy * vy);
+    }
+
+    // Screen y grows downwards, so potential energy falls as y grows
+    private double potentialEnergy(double mass, double y) {
+        return -mass * gravity * y;
+    }
+
+    /**
+     * Start tracking a new set of bodies: totals come from a full reduction and losses are cleared
+     */
+    public void reset(BodyStore bodies) {
+        step = 0;
+        lostToRestitution = 0;
+        lostToDamping = 0;
+        addedByCorrection = 0;
+        reconcileError = 0;
+        reduce(bodies);
+        initialEnergy = conservedEnergy();
+        publish();
+    }
+
+    public double getGravity() {
+        return gravity;
+    }
+
+    // Energy conserved by the physics step, see the class comment
+    private double conservedEnergy() {
+        return kineticEnergy + potentialEnergy + 0.5 * gravity * momentumY;
+    }
+
+    /**
+     * Add the changes of a step, or of a single collision, to the running totals
+     *
+     * @param restitution kinetic energy lost to bounces off walls and other bodies
+     * @param damping     kinetic energy lost to air and ground friction
+     * @param correction  any other change of the conserved energy, see the class comment
+     */
+    public void accumulate(double dMomentumX, double dMomentumY, double dKinetic, double dPotential,
+                           double restitution, double damping, double correction) {
+        momentumX += dMomentumX;
+        momentumY += dMomentumY;
+        kineticEnergy += dKinetic;
+        potentialEnergy += dPotential;
+        lostToRestitution += restitution;
+        lostToDamping += damping;
+        addedByCorrection += correction;
+    }
+
+    /**
+     * Finish a step: reconcile if due and publish the totals
+     */
+    public void endStep(BodyStore bodies) {
+        step++;
+        if (reconcileInterval > 0 && step % reconcileInterval == 0) {
+            reconcile(bodies);
+        } else {
+            publish();
+        }
+    }
+
+    /**
+     * Compare the running totals with a full parallel reduction, adopt the reduced values and publish them
+     */
+    public void reconcile(BodyStore bodies) {
+        double runningX = momentumX;
+        double runningY = momentumY;
+        double runningKinetic = kineticEnergy;
+        double runningPotential = potentialEnergy;
+
+        reduce(bodies);
+
+        reconcileError = Math.max(
+                Math.max(Math.abs(runningX - momentumX), Math.abs(runningY - momentumY)),
+                Math.max(Math.abs(runningKinetic - kineticEnergy), Math.abs(runningPotential - potentialEnergy)));
+        publish();
+    }
+
+    // Full reduction over all bodies, split into chunks summed in parallel
+    private void reduce(BodyStore bodies) {
+        int count = bodies.size();
+        int chunk = 4096;
+        int chunks = (count + chunk - 1) / chunk;
+
+        double[] sums = IntStream.range(0, chunks).parallel()
+                .mapToObj(c -> {
+                    double[] partial = new double[4];
+                    int end = Math.min(count, (c + 1) * chunk);
+                    for (int i = c * chunk; i < end; i++) {
+                        if (bodies.isStatic(i)) {
+                            continue;
+                        }
+                        double mass = 1.0 / bodies.getInverseMass(i);
+                        double vx = bodies.getVx(i);
+                        double vy = bodies.getVy(i);
+                        partial[0] += mass * vx;
+                        partial[1] += mass * vy;
+                        partial[2] += kineticEnergy(mass, vx, vy);
+                        partial[3] += potentialEnergy(mass, bodies.getY(i));
+                    }
+                    return partial;
+                })
+                .reduce(new double[4], (a, b) -> new double[]{a[0] + b[0], a[1] + b[1], a[2] + b[2], a[3] + b[3]});
+
+        momentumX = sums[0];
+        momentumY = sums[1];
+        kineticEnergy = sums[2];
+        potentialEnergy = sums[3];
+    }
+
+    private void publish() {
+        double drift = conservedEnergy() + lostToRestitution + lostToDamping
+                - addedByCorrection - initialEnergy;
+        Totals published = new Totals(step, momentumX, momentumY, kineticEnergy, potentialEnergy,
+                lostToRestitution, lostToDamping, addedByCorrection, drift, reconcileError);
+        totals = published;
+        for (Listener listener : listeners) {
+            listener.onTotals(published);
+        }
+    }
+
+    /**
+     * Latest totals, published at the end of the last step (null before reset)
+     */
+    public Totals getTotals() {
+        return totals;
+    }
+}
@@ -171,6 +171,130 @@ public class HandleObjectCollisions {
         );
     }
 
+    /**
+     * Check and resolve collisions between off-heap bodies using a Verlet neighbour list.
+     * Only the pairs in the list are checked; the list rebuilds itself when bodies have moved too far.
+     * No cooldown map is kept here (it would allocate per pair); pairs that are
+     * already moving apart are skipped in resolveCollision instead.
+     */
+    public static void handleAllCollisions(BodyStore bodies, NeighbourList neighbours) {
+        handleAllCollisions(bodies, neighbours, null);
+    }
+
+    /**
+     * Same as above, reporting momentum and energy changes to the diagnostics (may be null)
+     */
+    public static void handleAllCollisions(BodyStore bodies, NeighbourList neighbours,
+                                           ConservationDiagnostics diagnostics) {
+        neighbours.update(bodies);
+
+        for (int i = 0; i < neighbours.getBodyCount(); i++) {
+            for (int k = neighbours.getStart(i); k < neighbours.getEnd(i); k++) {
+                handleCircleCollision(bodies, i, neighbours.getNeighbour(k), diagnostics);
+            }
+        }
+    }
+
+    /**
+     * Check if two stored circles are colliding and resolve the collision
+     * Returns true if collision occurred
+     */
+    private static boolean handleCircleCollision(BodyStore bodies, int i, int j,
+                                                 ConservationDiagnostics diagnostics) {
+        // Calculate distance between centers
+        double dx = bodies.getCenterX(j) - bodies.getCenterX(i);
+        double dy = bodies.getCenterY(j) - bodies.getCenterY(i);
+        double distanceSquared = dx * dx + dy * dy;
+
+        // Calculate minimum distance for collision (sum of radii)
+        double minDistance = (bodies.getWidth(i) + bodies.getWidth(j)) / 2.0;
+
+        // Check if circles are colliding
+        if (distanceSquared < minDistance * minDistance && distanceSquared > 0) {
+            resolveCollision(bodies, i, j, dx, dy, Math.sqrt(distanceSquared), minDistance, diagnostics);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Resolve collision between two stored circles using conservation of momentum
+     */
+    private static void resolveCollision(BodyStore bodies, int i, int j,
+                                         double dx, double dy,
+                                         double distance, double minDistance,
+                                         ConservationDiagnostics diagnostics) {
+        // Static bodies act as infinitely heavy
+        double invMass1 = bodies.isStatic(i) ? 0 : bodies.getInverseMass(i);
+        double invMass2 = bodies.isStatic(j) ? 0 : bodies.getInverseMass(j);
+        double totalInvMass = invMass1 + invMass2;
+        if (totalInvMass == 0) {
+            return;
+        }
+        double nx = dx / distance;
+        double ny = dy / distance;
+
+        // Separate the circles, lighter circles move more
+        double overlap = minDistance - distance;
+        double separation1 = overlap * invMass1 / totalInvMass;
+        double separation2 = overlap * invMass2 / totalInvMass;
+        bodies.setPosition(i, bodies.getX(i) - nx * separation1, bodies.getY(i) - ny * separation1);
+        bodies.setPosition(j, bodies.getX(j) + nx * separation2, bodies.getY(j) + ny * separation2);
+
+        // Velocities along collision normal; static bodies never move, whatever velocity they hold
+        double vx1 = invMass1 > 0 ? bodies.getVx(i) : 0, vy1 = invMass1 > 0 ? bodies.getVy(i) : 0;
+        double vx2 = invMass2 > 0 ? bodies.getVx(j) : 0, vy2 = invMass2 > 0 ? bodies.getVy(j) : 0;
+        double vn1 = vx1 * nx + vy1 * ny;
+        double vn2 = vx2 * nx + vy2 * ny;
+        double dvn = vn2 - vn1;
+
+        // Don't push if circles are moving apart
+        double impulse = 0;
+        if (dvn < 0) {
+            // J = -(1 + e) * dvn / (1/m1 + 1/m2)
+            impulse = -(1 + RESTITUTION) * dvn / totalInvMass;
+            if (invMass1 > 0) {
+                bodies.setVelocity(i, vx1 - impulse * nx * invMass1, vy1 - impulse * ny * invMass1);
+            }
+            if (invMass2 > 0) {
+                bodies.setVelocity(j, vx2 + impulse * nx * invMass2, vy2 + impulse * ny * invMass2);
+            }
+        }
+
+        if (diagnostics != null) {
+            reportCollision(diagnostics, invMass1 > 0, invMass2 > 0, totalInvMass,
+                    nx, ny, overlap, vn1, vn2, impulse);
+        }
+    }
+
+    /**
+     * Report a collision from the impulse alone: body k has m * dv = +-J * n,
+     * m * dy = +-ny * overlap / totalInvMass, and dKE = +-J * vn + J^2 * invMass / 2.
+     * The kinetic energy lost is J * -dvn * (1 - e) / 2, which is never negative.
+     * Static bodies are not part of the totals.
+     */
+    private static void reportCollision(ConservationDiagnostics diagnostics,
+                                        boolean moves1, boolean moves2, double totalInvMass,
+                                        double nx, double ny, double overlap,
+                                        double vn1, double vn2, double impulse) {
+        double movingBodies = (moves2 ? 1 : 0) - (moves1 ? 1 : 0); // net sign of +n over the moving bodies
+        double gravity = diagnostics.getGravity();
+
+        double dMomentumX = impulse * nx * movingBodies;
+        double dMomentumY = impulse * ny * movingBodies;
+        double dKinetic = 0.5 * impulse * impulse * totalInvMass
+                + (moves1 ? -impulse * vn1 : 0) + (moves2 ? impulse * vn2 : 0);
+
+        double restitution = 0.5 * impulse * (vn1 - vn2) * (1 - RESTITUTION);
+
+        // Separation is a pure position correction; it cancels out unless one body is static
+        double dPotential = -gravity * ny * overlap / totalInvMass * movingBodies;
+
+        diagnostics.accumulate(dMomentumX, dMomentumY, dKinetic, dPotential,
+                restitution, 0, dPotential + 0.5 * gravity * dMomentumY);
+    }
+
     /**
      * Debug: Print momentum before and after collision
      */
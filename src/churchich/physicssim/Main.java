@@ -2,6 +2,9 @@ package churchich.physicssim;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 
 public class Main implements Runnable {
 
@@ -13,6 +16,10 @@ public class Main implements Runnable {
     public Renderer rend;
 
     public Main() {
+        this(null);
+    }
+
+    public Main(BodyStore bodies) {
         frame = new JFrame();
         frame.setSize(SCREEN_SIZE);
         frame.setTitle(TITLE);
@@ -27,6 +34,11 @@ public class Main implements Runnable {
         rend.addObject(new Circle(500, 150, 40, Color.GREEN));
         rend.addObject(new Rectangle(200, 400, 150, 100, Color.YELLOW));
 
+        // Optional off-heap bodies loaded from a scene file
+        if (bodies != null) {
+            rend.setBodies(bodies);
+        }
+
         frame.add(rend);
 
         frame.setVisible(true);
@@ -47,7 +59,18 @@ public class Main implements Runnable {
     }
 
     public static void main(String[] args) {
-        Main main = new Main();
+        // Load the scene file before building the window, falling back to the default scene
+        BodyStore bodies = null;
+        if (args.length > 0) {
+            try {
+                bodies = BodyStore.map(Path.of(args[0]));
+            } catch (IOException | InvalidPathException e) {
+                System.err.println("Could not load scene file " + args[0] + ": " + e.getMessage());
+                System.err.println("Using the default scene");
+            }
+        }
+
+        Main main = new Main(bodies);
         new Thread(main).start();
     }
 }
\ No newline at end of file
@@ -0,0 +1,228 @@
+package churchich.physicssim;
+
+import java.util.Arrays;
+
+/**
+ * Verlet neighbour list for the circles in a BodyStore.
+ * Candidate pairs are found with an extra skin margin and reused across frames,
+ * and are only rebuilt once some body has moved more than half the skin.
+ * Pairs are kept in primitive arrays: the neighbours of body i are
+ * neighbours[start[i]] .. neighbours[start[i + 1] - 1], all with index > i.
+ */
+public class NeighbourList {
+
+    private double skin;
+
+    // Pair list
+    private int[] start = new int[1];
+    private int[] neighbours = new int[0];
+    private int pairCount;
+
+    // Positions at the last build
+    private double[] buildX = new double[0];
+    private double[] buildY = new double[0];
+    private int builtCount = -1;
+
+    // Grid scratch space used while building
+    private int[] cellOf = new int[0];
+    private int[] cellStart = new int[0];
+    private int[] cellFill = new int[0];
+    private int[] cellBodies = new int[0];
+
+    // Metrics
+    private long updates;
+    private long rebuilds;
+
+    public NeighbourList(double skin) {
+        this.skin = checkSkin(skin);
+    }
+
+    // A negative skin would drop touching pairs and NaN would drop every pair
+    static double checkSkin(double skin) {
+        if (!(skin >= 0) || Double.isInfinite(skin)) {
+            throw new IllegalArgumentException("Neighbour list skin must be finite and >= 0, got " + skin);
+        }
+        return skin;
+    }
+
+    /**
+     * Change the skin; the list is rebuilt on the next update and the metrics carry on
+     */
+    public void setSkin(double skin) {
+        this.skin = checkSkin(skin);
+        builtCount = -1;
+    }
+
+    /**
+     * Rebuild the list if any body has moved more than half the skin since the last build.
+     * Call once per step before iterating the pairs. Returns true if it was rebuilt.
+     */
+    public boolean update(BodyStore bodies) {
+        updates++;
+        if (needsRebuild(bodies)) {
+            build(bodies);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean needsRebuild(BodyStore bodies) {
+        if (bodies.size() != builtCount) {
+            return true;
+        }
+        double limit = skin / 2.0;
+        double limitSquared = limit * limit;
+        for (int i = 0; i < builtCount; i++) {
+            double dx = bodies.getX(i) - buildX[i];
+            double dy = bodies.getY(i) - buildY[i];
+            if (dx * dx + dy * dy > limitSquared) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Build the pair list from scratch using a uniform grid
+     */
+    public void build(BodyStore bodies) {
+        int count = bodies.size();
+        rebuilds++;
+        builtCount = count;
+        pairCount = 0;
+        if (start.length < count + 1) {
+            start = new int[count + 1];
+            buildX = new double[count];
+            buildY = new double[count];
+            cellOf = new int[count];
+            cellBodies = new int[count];
+        }
+
+        // Record positions and find the bounds and largest circle
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        double maxDiameter = 0;
+        for (int i = 0; i < count; i++) {
+            double x = bodies.getCenterX(i);
+            double y = bodies.getCenterY(i);
+            buildX[i] = bodies.getX(i);
+            buildY[i] = bodies.getY(i);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            if (bodies.getShape(i) == BodyStore.SHAPE_CIRCLE) {
+                maxDiameter = Math.max(maxDiameter, bodies.getWidth(i));
+            }
+        }
+        if (count == 0) {
+            start[0] = 0;
+            return;
+        }
+
+        // Any pair within reach is at most one cell apart; grow cells if the grid gets too sparse.
+        // Sized in doubles first, as static bodies far away can span more cells than an int holds.
+        double cellSize = Math.max(maxDiameter + skin, 1.0);
+        double maxCells = 2.0 * count + 16;
+        while ((Math.floor((maxX - minX) / cellSize) + 1) * (Math.floor((maxY - minY) / cellSize) + 1) > maxCells
+                && !Double.isInfinite(cellSize)) {
+            cellSize *= 2;
+        }
+        int cols = cellIndex(maxX - minX, cellSize, Integer.MAX_VALUE - 1) + 1;
+        int rows = cellIndex(maxY - minY, cellSize, Integer.MAX_VALUE - 1) + 1;
+        int cells = cols * rows;
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+            cellFill = new int[cells];
+        } else {
+            Arrays.fill(cellStart, 0, cells + 1, 0);
+        }
+
+        // Counting sort of bodies into cells
+        for (int i = 0; i < count; i++) {
+            int cx = cellIndex(bodies.getCenterX(i) - minX, cellSize, cols - 1);
+            int cy = cellIndex(bodies.getCenterY(i) - minY, cellSize, rows - 1);
+            cellOf[i] = cy * cols + cx;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        System.arraycopy(cellStart, 0, cellFill, 0, cells);
+        for (int i = 0; i < count; i++) {
+            cellBodies[cellFill[cellOf[i]]++] = i;
+        }
+
+        // Collect pairs (j > i) within the sum of radii plus the skin
+        for (int i = 0; i < count; i++) {
+            start[i] = pairCount;
+            if (bodies.getShape(i) != BodyStore.SHAPE_CIRCLE) {
+                continue;
+            }
+            double xi = bodies.getCenterX(i);
+            double yi = bodies.getCenterY(i);
+            double ri = bodies.getWidth(i) / 2.0;
+            int cx = cellOf[i] % cols;
+            int cy = cellOf[i] / cols;
+
+            for (int ny = Math.max(cy - 1, 0); ny <= Math.min(cy + 1, rows - 1); ny++) {
+                for (int nx = Math.max(cx - 1, 0); nx <= Math.min(cx + 1, cols - 1); nx++) {
+                    int cell = ny * cols + nx;
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                        int j = cellBodies[k];
+                        if (j <= i || bodies.getShape(j) != BodyStore.SHAPE_CIRCLE) {
+                            continue;
+                        }
+                        double dx = bodies.getCenterX(j) - xi;
+                        double dy = bodies.getCenterY(j) - yi;
+                        double reach = ri + bodies.getWidth(j) / 2.0 + skin;
+                        if (dx * dx + dy * dy < reach * reach) {
+                            addPair(j);
+                        }
+                    }
+                }
+            }
+        }
+        start[count] = pairCount;
+    }
+
+    // Cell of an offset from the grid origin, kept within 0..last even for huge or NaN offsets
+    private static int cellIndex(double offset, double cellSize, int last) {
+        double cell = Math.floor(offset / cellSize);
+        return cell >= 0 ? (int) Math.min(cell, last) : 0;
+    }
+
+    private void addPair(int j) {
+        if (pairCount == neighbours.length) {
+            neighbours = Arrays.copyOf(neighbours, Math.max(16, neighbours.length * 2));
+        }
+        neighbours[pairCount++] = j;
+    }
+
+    public double getSkin() { return skin; }
+
+    // Pair access
+    public int getBodyCount() { return builtCount; }
+    public int getStart(int i) { return start[i]; }
+    public int getEnd(int i) { return start[i + 1]; }
+    public int getNeighbour(int k) { return neighbours[k]; }
+
+    // Metrics
+    public int getPairCount() { return pairCount; }
+    public long getUpdateCount() { return updates; }
+    public long getRebuildCount() { return rebuilds; }
+
+    public double getRebuildFrequency() {
+        return updates == 0 ? 0 : (double) rebuilds / updates;
+    }
+
+    public double getAveragePairsPerBody() {
+        return builtCount <= 0 ? 0 : (double) pairCount / builtCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("NeighbourList(pairs=%d, rebuilds=%d/%d, frequency=%.3f)",
+                pairCount, rebuilds, updates, getRebuildFrequency());
+    }
+}
@@ -10,6 +10,11 @@ import java.util.List;
 public class Renderer extends JPanel {
     private JFrame frame;
     private List<PhysicsObject> objects;
+    private BodyStore bodies; // optional off-heap bodies for very large worlds
+    private NeighbourList neighbours;
+    private double neighbourSkin = DEFAULT_NEIGHBOUR_SKIN;
+    private ConservationDiagnostics diagnostics;
+    private BodyPhysics bodyPhysics;
     private PhysicsObject draggedObject = null;
     private int dragOffsetX;
     private int dragOffsetY;
@@ -25,6 +30,8 @@ public class Renderer extends JPanel {
     private static final double GRAVITY = 0.5;
     private static final double FRICTION = 0.98;
     private static final double VELOCITY_SCALE = 0.5; // how much mouse velocity affects object
+    private static final double DEFAULT_NEIGHBOUR_SKIN = 8.0; // extra reach of neighbour lists in pixels
+    private static final int RECONCILE_INTERVAL = 600; // steps between full momentum/energy reductions (~10s)
 
     public Renderer(JFrame frame) {
         this.frame = frame;
@@ -110,6 +117,43 @@ public class Renderer extends JPanel {
         return objects;
     }
 
+    public void setBodies(BodyStore bodies) {
+        this.neighbours = new NeighbourList(neighbourSkin);
+        this.diagnostics = new ConservationDiagnostics(GRAVITY, RECONCILE_INTERVAL);
+        this.bodyPhysics = new BodyPhysics(GRAVITY, FRICTION, neighbours, diagnostics);
+        if (bodies != null) {
+            diagnostics.reset(bodies);
+        }
+        this.bodies = bodies;
+    }
+
+    public BodyStore getBodies() {
+        return bodies;
+    }
+
+    public NeighbourList getNeighbours() {
+        return neighbours;
+    }
+
+    /**
+     * Set the skin of the neighbour list; a larger skin means fewer rebuilds but more pairs.
+     * The list keeps its rebuild metrics; setBodies starts a fresh list (and metrics) for a new world.
+     */
+    public void setNeighbourSkin(double skin) {
+        this.neighbourSkin = NeighbourList.checkSkin(skin);
+        if (neighbours != null) {
+            neighbours.setSkin(skin);
+        }
+    }
+
+    public double getNeighbourSkin() {
+        return neighbourSkin;
+    }
+
+    public ConservationDiagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
     // Update all physics
     public void updatePhysics() {
         for (PhysicsObject obj : objects) {
@@ -126,6 +170,10 @@ public class Renderer extends JPanel {
             }
         }
         HandleObjectCollisions.handleAllCollisions(objects);
+
+        if (bodies != null) {
+            bodyPhysics.step(bodies, getWidth(), getHeight());
+        }
     }
 
     // Handle wall collisions
@@ -202,6 +250,22 @@ public class Renderer extends JPanel {
             obj.draw(g);
         }
 
+        // Draw off-heap bodies
+        if (bodies != null) {
+            g.setColor(Color.CYAN);
+            for (int i = 0; i < bodies.size(); i++) {
+                int x = (int) bodies.getX(i);
+                int y = (int) bodies.getY(i);
+                int w = (int) bodies.getWidth(i);
+                int h = (int) bodies.getHeight(i);
+                if (bodies.getShape(i) == BodyStore.SHAPE_CIRCLE) {
+                    g.fillOval(x, y, w, h);
+                } else {
+                    g.fillRect(x, y, w, h);
+                }
+            }
+        }
+
         // Optional: Draw velocity vectors for debugging
         Graphics2D g2d = (Graphics2D) g;
         g2d.setColor(Color.YELLOW);
@@ -0,0 +1,118 @@
+package churchich.physicssim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Checks that a BodyStore saved to a scene file maps back with the same bodies,
+ * that changing a mapped store never writes back to the file, that read-only
+ * scene files can still be loaded, that files without a matching header are rejected,
+ * and that bodies without a positive size are rejected.
+ */
+public class BodyStoreRoundTrip {
+
+    public static void main(String[] args) throws IOException {
+        Path sceneFile = Files.createTempFile("scene", ".bodies");
+        try {
+            try (BodyStore saved = BodyStore.allocate(3)) {
+                saved.addCircle(10.5, 20.25, 30);
+                saved.addRectangle(100, 200, 40, 50);
+                int pinned = saved.addCircle(300, 400, 12);
+                saved.setVelocity(0, 1.5, -2.5);
+                saved.setFlags(pinned, BodyStore.FLAG_PINNED);
+                saved.save(sceneFile);
+
+                try (BodyStore mapped = BodyStore.map(sceneFile)) {
+                    check(mapped.size() == 3, "body count");
+                    for (int i = 0; i < 3; i++) {
+                        checkSameBody(saved, mapped, i);
+                    }
+
+                    // Private mapping: changes stay in memory
+                    mapped.setPosition(0, -1, -1);
+                }
+
+                try (BodyStore remapped = BodyStore.map(sceneFile)) {
+                    checkSameBody(saved, remapped, 0);
+                }
+
+                // Read-only scene files are copied instead of mapped
+                check(sceneFile.toFile().setWritable(false), "making the scene file read-only");
+                try (BodyStore mapped = BodyStore.map(sceneFile);
+                     BodyStore loaded = BodyStore.load(sceneFile)) {
+                    check(mapped.size() == 3 && loaded.size() == 3, "body count of read-only file");
+                    for (int i = 0; i < 3; i++) {
+                        checkSameBody(saved, mapped, i);
+                        checkSameBody(saved, loaded, i);
+                    }
+                }
+            }
+
+            // Headerless records (the old format), a foreign magic, another version, a wrong count
+            check(sceneFile.toFile().setWritable(true), "making the scene file writable");
+            checkUnrecognised(sceneFile, new byte[(int) BodyStore.RECORD_SIZE], "a headerless scene file");
+            checkUnrecognised(sceneFile, header(0x12345678, BodyStore.VERSION, 0), "a foreign magic number");
+            checkUnrecognised(sceneFile, header(BodyStore.MAGIC, BodyStore.VERSION + 1, 0), "another layout version");
+            checkUnrecognised(sceneFile, header(BodyStore.MAGIC, BodyStore.VERSION, 1), "a missing body record");
+            checkUnrecognised(sceneFile, new byte[0], "an empty file");
+
+            try (BodyStore bodies = BodyStore.allocate(2)) {
+                checkRejected(() -> bodies.addCircle(0, 0, 0), "circle with zero diameter");
+                checkRejected(() -> bodies.addRectangle(0, 0, 10, -5), "rectangle with negative height");
+                check(bodies.size() == 0, "no body added for a rejected size");
+
+                int body = bodies.addCircle(0, 0, 10);
+                checkRejected(() -> bodies.setInverseMass(body, -1), "negative inverse mass");
+                checkRejected(() -> bodies.setInverseMass(body, Double.NaN), "NaN inverse mass");
+            }
+            System.out.println("BodyStore round trip OK");
+        } finally {
+            Files.deleteIfExists(sceneFile);
+        }
+    }
+
+    private static void checkSameBody(BodyStore expected, BodyStore actual, int i) {
+        check(expected.getX(i) == actual.getX(i), "x of body " + i);
+        check(expected.getY(i) == actual.getY(i), "y of body " + i);
+        check(expected.getVx(i) == actual.getVx(i), "vx of body " + i);
+        check(expected.getVy(i) == actual.getVy(i), "vy of body " + i);
+        check(expected.getInverseMass(i) == actual.getInverseMass(i), "inverse mass of body " + i);
+        check(expected.getWidth(i) == actual.getWidth(i), "width of body " + i);
+        check(expected.getHeight(i) == actual.getHeight(i), "height of body " + i);
+        check(expected.getShape(i) == actual.getShape(i), "shape of body " + i);
+        check(expected.getFlags(i) == actual.getFlags(i), "flags of body " + i);
+    }
+
+    private static byte[] header(int magic, int version, long count) {
+        ByteBuffer header = ByteBuffer.allocate((int) BodyStore.HEADER_LAYOUT.byteSize()).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(magic).putInt(version).putLong(count);
+        return header.array();
+    }
+
+    private static void checkUnrecognised(Path sceneFile, byte[] contents, String what) throws IOException {
+        Files.write(sceneFile, contents);
+        try (BodyStore bodies = BodyStore.map(sceneFile)) {
+            throw new AssertionError("Mapped " + what);
+        } catch (IOException expected) {
+            // rejected
+        }
+    }
+
+    private static void checkRejected(Runnable add, String what) {
+        try {
+            add.run();
+        } catch (IllegalArgumentException expected) {
+            return;
+        }
+        throw new AssertionError("Accepted " + what);
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Mismatch in " + what);
+        }
+    }
+}
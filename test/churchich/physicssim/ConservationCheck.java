@@ -0,0 +1,79 @@
+package churchich.physicssim;
+
+import java.util.Random;
+
+/**
+ * Runs the off-heap physics step headless over a crowded box with floor contacts,
+ * circle collisions, a pinned body and a body with zero inverse mass, then checks
+ * that the incremental totals agree with a full reduction, that no energy goes
+ * unaccounted for, and that the energy lost to restitution and damping only grows.
+ */
+public class ConservationCheck {
+
+    private static final double GRAVITY = 0.5;
+    private static final double FRICTION = 0.98;
+    private static final double WIDTH = 400;
+    private static final double HEIGHT = 300;
+    private static final int STEPS = 500;
+
+    public static void main(String[] args) {
+        Random random = new Random(7);
+
+        try (BodyStore bodies = BodyStore.allocate(200)) {
+            for (int i = 0; i < 190; i++) {
+                int diameter = 6 + random.nextInt(14);
+                int body = bodies.addCircle(random.nextDouble() * (WIDTH - diameter),
+                        random.nextDouble() * (HEIGHT - diameter), diameter);
+                bodies.setVelocity(body, random.nextGaussian() * 4, random.nextGaussian() * 4);
+            }
+            for (int i = 0; i < 5; i++) {
+                bodies.addRectangle(random.nextDouble() * 380, HEIGHT - 10, 20, 10);
+            }
+
+            // Static bodies in the middle of the box; a stored velocity must not make them push
+            int pinned = bodies.addCircle(150, 150, 30);
+            bodies.setFlags(pinned, BodyStore.FLAG_PINNED);
+            bodies.setVelocity(pinned, 3, -3);
+            int heavy = bodies.addCircle(250, 150, 30);
+            bodies.setInverseMass(heavy, 0);
+
+            NeighbourList neighbours = new NeighbourList(8.0);
+            ConservationDiagnostics diagnostics = new ConservationDiagnostics(GRAVITY, 0);
+            double[] lost = new double[2];
+            diagnostics.addListener(totals -> {
+                check(totals.lostToRestitution >= lost[0], "restitution went down at step " + totals.step);
+                check(totals.lostToDamping >= lost[1], "damping went down at step " + totals.step);
+                lost[0] = totals.lostToRestitution;
+                lost[1] = totals.lostToDamping;
+            });
+            diagnostics.reset(bodies);
+            double scale = Math.abs(diagnostics.getTotals().potentialEnergy) + diagnostics.getTotals().kineticEnergy;
+
+            BodyPhysics physics = new BodyPhysics(GRAVITY, FRICTION, neighbours, diagnostics);
+            for (int step = 0; step < STEPS; step++) {
+                physics.step(bodies, WIDTH, HEIGHT);
+            }
+            diagnostics.reconcile(bodies);
+
+            ConservationDiagnostics.Totals totals = diagnostics.getTotals();
+            check(totals.step == STEPS, "step count");
+            check(Math.abs(totals.reconcileError) < 1e-9 * scale, "reconcile error " + totals.reconcileError);
+            check(Math.abs(totals.energyDrift) < 1e-9 * scale, "energy drift " + totals.energyDrift);
+            check(totals.lostToRestitution > 0 && totals.lostToDamping > 0, "bounces and friction happened");
+
+            check(bodies.getX(pinned) == 150 && bodies.getY(pinned) == 150, "pinned body stayed put");
+            check(bodies.getX(heavy) == 250 && bodies.getY(heavy) == 150, "zero inverse mass body stayed put");
+            for (int i = 0; i < bodies.size(); i++) {
+                check(Double.isFinite(bodies.getX(i)) && Double.isFinite(bodies.getVy(i)), "finite body " + i);
+            }
+        }
+
+        System.out.println("Conservation check OK");
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Failed: " + what);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package churchich.physicssim;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks the Verlet neighbour list against a brute-force scan of all pairs:
+ * the built list holds exactly the circle pairs within reach (radii plus skin),
+ * moving bodies by less than half the skin neither rebuilds it nor loses an
+ * overlapping pair, and the rebuild and pair metrics match.
+ */
+public class NeighbourListCheck {
+
+    private static final double SKIN = 8.0;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        int count = 2000;
+
+        try (BodyStore bodies = BodyStore.allocate(count + 1)) {
+            for (int i = 0; i < count; i++) {
+                double x = random.nextDouble() * 780;
+                double y = random.nextDouble() * 580;
+                if (i % 10 == 0) {
+                    bodies.addRectangle(x, y, 5 + random.nextInt(20), 5 + random.nextInt(20));
+                } else {
+                    bodies.addCircle(x, y, 4 + random.nextInt(16));
+                }
+            }
+            // A pinned body far away must not break the grid sizing
+            int far = bodies.addCircle(1e12, -1e12, 10);
+            bodies.setFlags(far, BodyStore.FLAG_PINNED);
+
+            NeighbourList neighbours = new NeighbourList(SKIN);
+            check(neighbours.update(bodies), "first update builds the list");
+            Set<Long> listed = listedPairs(neighbours);
+            Set<Long> expected = pairsWithin(bodies, SKIN);
+            check(listed.equals(expected), "built pairs match the brute-force scan");
+            check(neighbours.getPairCount() == expected.size(), "pair count metric");
+
+            // Move every body by less than half the skin
+            double step = SKIN / 2.0 * 0.9;
+            for (int i = 0; i < count; i++) {
+                double angle = random.nextDouble() * 2 * Math.PI;
+                double distance = random.nextDouble() * step;
+                bodies.setPosition(i, bodies.getX(i) + Math.cos(angle) * distance,
+                        bodies.getY(i) + Math.sin(angle) * distance);
+            }
+            check(!neighbours.update(bodies), "no rebuild within half the skin");
+            check(listed.containsAll(pairsWithin(bodies, 0)), "no overlapping pair missed after moving");
+            check(neighbours.getRebuildCount() == 1 && neighbours.getUpdateCount() == 2, "rebuild metrics");
+
+            // One body past half the skin forces a rebuild
+            bodies.setPosition(1, bodies.getX(1) + SKIN, bodies.getY(1));
+            check(neighbours.update(bodies), "rebuild past half the skin");
+            check(listedPairs(neighbours).equals(pairsWithin(bodies, SKIN)), "rebuilt pairs match the brute-force scan");
+            check(neighbours.getRebuildCount() == 2, "rebuild count after moving past half the skin");
+
+            // Changing the skin rebuilds but keeps the metrics
+            neighbours.setSkin(2 * SKIN);
+            check(neighbours.update(bodies), "rebuild after changing the skin");
+            check(neighbours.getRebuildCount() == 3 && neighbours.getUpdateCount() == 4, "metrics kept across setSkin");
+            check(listedPairs(neighbours).equals(pairsWithin(bodies, 2 * SKIN)), "pairs for the new skin");
+        }
+
+        checkRejected(-1);
+        checkRejected(Double.NaN);
+        checkRejected(Double.POSITIVE_INFINITY);
+
+        System.out.println("NeighbourList check OK");
+    }
+
+    private static Set<Long> listedPairs(NeighbourList neighbours) {
+        Set<Long> pairs = new HashSet<>();
+        for (int i = 0; i < neighbours.getBodyCount(); i++) {
+            for (int k = neighbours.getStart(i); k < neighbours.getEnd(i); k++) {
+                check(pairs.add(key(i, neighbours.getNeighbour(k))), "pair listed once");
+            }
+        }
+        return pairs;
+    }
+
+    // Circle pairs whose centres are closer than the sum of radii plus the skin
+    private static Set<Long> pairsWithin(BodyStore bodies, double skin) {
+        Set<Long> pairs = new HashSet<>();
+        for (int i = 0; i < bodies.size(); i++) {
+            for (int j = i + 1; j < bodies.size(); j++) {
+                if (bodies.getShape(i) != BodyStore.SHAPE_CIRCLE || bodies.getShape(j) != BodyStore.SHAPE_CIRCLE) {
+                    continue;
+                }
+                double dx = bodies.getCenterX(j) - bodies.getCenterX(i);
+                double dy = bodies.getCenterY(j) - bodies.getCenterY(i);
+                double reach = (bodies.getWidth(i) + bodies.getWidth(j)) / 2.0 + skin;
+                if (dx * dx + dy * dy < reach * reach) {
+                    pairs.add(key(i, j));
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private static long key(int i, int j) {
+        return (long) i << 32 | j;
+    }
+
+    private static void checkRejected(double skin) {
+        try {
+            new NeighbourList(skin);
+        } catch (IllegalArgumentException expected) {
+            return;
+        }
+        throw new AssertionError("Accepted skin " + skin);
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Failed: " + what);
+        }
+    }
+}